@@ -0,0 +1,217 @@
+package com.github.dryabkov.mvndeps;
+
+import org.apache.bcel.classfile.JavaClass;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Superclass/interface index over the scanned classes.
+ * Every class name gets an integer id; ancestor sets are memoized as bitsets over these ids,
+ * so subtype questions are answered without walking the hierarchy again.
+ * Headers of not scanned classes are read once from libraries when their ancestors are first needed.
+ */
+public class ClassHierarchyIndex {
+
+    private static final String THROWABLE = "java.lang.Throwable";
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final LibraryClasses libraries;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Node> nodes = new ArrayList<>();
+
+    private final List<BitSet> ancestors = new ArrayList<>();
+
+    private final int throwableId;
+
+    private static class Node {
+        private boolean scanned;
+        // header is known: scanned, read from a library or not found there
+        private boolean resolved;
+        private boolean isInterface;
+        private int superId = -1;
+        private int[] interfaceIds = NO_IDS;
+        private final Set<Integer> subtypeIds = new HashSet<>();
+    }
+
+    ClassHierarchyIndex(LibraryClasses libraries) {
+        this.libraries = libraries;
+        this.throwableId = idOf(THROWABLE);
+    }
+
+    public void add(JavaClass javaClass) {
+        int id = idOf(javaClass.getClassName());
+        setHeader(id, javaClass);
+        nodes.get(id).scanned = true;
+    }
+
+    /**
+     * Forgets hierarchy of a deleted class, it stays as a leaf.
+     */
+    public void remove(String className) {
+        Integer id = ids.get(className);
+        if (id != null) {
+            Node node = nodes.get(id);
+            unlinkSupertypes(id);
+            node.scanned = false;
+            node.resolved = true;
+            invalidate(id);
+        }
+    }
+
+    public boolean isInterface(String className) {
+        Integer id = ids.get(className);
+        return id != null && resolve(id).isInterface;
+    }
+
+    /**
+     * @return true if {@code className} extends or implements {@code ancestorName}, directly or transitively
+     */
+    public boolean isSubtypeOf(String className, String ancestorName) {
+        Integer id = ids.get(className);
+        Integer ancestorId = ids.get(ancestorName);
+        return id != null && ancestorId != null && ancestors(id).get(ancestorId);
+    }
+
+    public boolean extendsClass(String className, String superName) {
+        return !isInterface(superName) && isSubtypeOf(className, superName);
+    }
+
+    public boolean implementsInterface(String className, String interfaceName) {
+        return isInterface(interfaceName) && isSubtypeOf(className, interfaceName);
+    }
+
+    public boolean isThrowable(String className) {
+        int id = idOf(className);
+        return id == throwableId || ancestors(id).get(throwableId);
+    }
+
+    /**
+     * @return given classes with all their known subtypes
+     */
+    public Set<String> withSubtypes(Collection<String> classNames) {
+        Set<String> result = new HashSet<>();
+        List<Integer> queue = new ArrayList<>();
+        for (String className : classNames) {
+            Integer id = ids.get(className);
+            if (id == null) {
+                result.add(className);
+            } else {
+                queue.add(id);
+            }
+        }
+        Set<Integer> visited = new HashSet<>(queue);
+        for (int i = 0; i < queue.size(); i++) {
+            result.add(names.get(queue.get(i)));
+            for (Integer subtypeId : nodes.get(queue.get(i)).subtypeIds) {
+                if (visited.add(subtypeId)) {
+                    queue.add(subtypeId);
+                }
+            }
+        }
+        return result;
+    }
+
+    private int idOf(String className) {
+        Integer id = ids.get(className);
+        if (id == null) {
+            id = names.size();
+            ids.put(className, id);
+            names.add(className);
+            nodes.add(new Node());
+            ancestors.add(null);
+        }
+        return id;
+    }
+
+    private void setHeader(int id, JavaClass javaClass) {
+        unlinkSupertypes(id);
+        Node node = nodes.get(id);
+        node.resolved = true;
+        node.isInterface = javaClass.isInterface();
+        String superName = javaClass.getSuperclassName();
+        node.superId = superName == null || superName.equals(javaClass.getClassName()) ? -1 : idOf(superName);
+        if (node.superId >= 0) {
+            nodes.get(node.superId).subtypeIds.add(id);
+        }
+        String[] interfaceNames = javaClass.getInterfaceNames();
+        node.interfaceIds = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            node.interfaceIds[i] = idOf(interfaceNames[i]);
+            Node interfaceNode = nodes.get(node.interfaceIds[i]);
+            interfaceNode.subtypeIds.add(id);
+            // stays an interface even if it is not found in libraries
+            if (!interfaceNode.resolved) {
+                interfaceNode.isInterface = true;
+            }
+        }
+        invalidate(id);
+    }
+
+    private void unlinkSupertypes(int id) {
+        Node node = nodes.get(id);
+        if (node.superId >= 0) {
+            nodes.get(node.superId).subtypeIds.remove(id);
+        }
+        for (int interfaceId : node.interfaceIds) {
+            nodes.get(interfaceId).subtypeIds.remove(id);
+        }
+        node.superId = -1;
+        node.interfaceIds = NO_IDS;
+    }
+
+    /**
+     * Drops memoized ancestors of the class and of its subtypes only.
+     */
+    private void invalidate(int id) {
+        List<Integer> queue = new ArrayList<>();
+        queue.add(id);
+        for (int i = 0; i < queue.size(); i++) {
+            int current = queue.get(i);
+            if (ancestors.get(current) != null || current == id) {
+                ancestors.set(current, null);
+                queue.addAll(nodes.get(current).subtypeIds);
+            }
+        }
+    }
+
+    private Node resolve(int id) {
+        Node node = nodes.get(id);
+        if (!node.resolved) {
+            node.resolved = true;
+            JavaClass javaClass = libraries.find(names.get(id));
+            if (javaClass != null) {
+                setHeader(id, javaClass);
+            }
+        }
+        return node;
+    }
+
+    private BitSet ancestors(int id) {
+        BitSet result = ancestors.get(id);
+        if (result == null) {
+            Node node = resolve(id);
+            result = new BitSet();
+            // guards against cycles in broken class files
+            ancestors.set(id, result);
+            if (node.superId >= 0) {
+                result.set(node.superId);
+                result.or(ancestors(node.superId));
+            }
+            for (int interfaceId : node.interfaceIds) {
+                result.set(interfaceId);
+                result.or(ancestors(interfaceId));
+            }
+        }
+        return result;
+    }
+}
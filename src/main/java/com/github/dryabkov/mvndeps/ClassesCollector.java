@@ -0,0 +1,452 @@
+package com.github.dryabkov.mvndeps;
+
+import com.github.dryabkov.mvndeps.entities.ExceptionEnt;
+import com.github.dryabkov.mvndeps.exceptions.ClassReadingException;
+import com.github.dryabkov.mvndeps.exceptions.MavenStructureException;
+import org.apache.bcel.classfile.AnnotationEntry;
+import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.classfile.Utility;
+import org.apache.bcel.generic.BasicType;
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.Type;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Scans classes directories of modules and aggregates class and package relations.
+ */
+class ClassesCollector {
+
+    private final Log logger;
+
+    private final List<String> packagePrefixes;
+
+    private final boolean trackContributions;
+
+    private Map<Integer, Link<String, String>> classes = new HashMap<>();
+    private Map<Integer, Link<String, ExceptionEnt>> packageUsesException = new HashMap<>();
+    private Map<String, Classinfo> classesInfo = new HashMap<>();
+    private final LibraryClasses libraries;
+    private final ClassHierarchyIndex hierarchy;
+    private final PackageTree packageTree;
+    // package tree is updated only if some rollups are written
+    private final boolean rollups;
+    private Map<Path, String> classesDirs = new HashMap<>();
+
+    // watch mode state: which aggregates every class has contributed to
+    private Map<Path, String> classFiles = new HashMap<>();
+    private Map<String, List<Integer>> classLinksByClass = new HashMap<>();
+    private Map<String, List<String>> usedPackagesByClass = new HashMap<>();
+    private Map<String, Set<Integer>> classLinksByTarget = new HashMap<>();
+    // class link -> its share of packageUsesException, to be undone when the link is classified again
+    private Map<Integer, Link<String, ExceptionEnt>> exceptionsByLink = new HashMap<>();
+    // classes and links changed since relations were classified
+    private Set<String> touchedClasses = new HashSet<>();
+    private Set<Integer> touchedLinks = new HashSet<>();
+
+    /**
+     * @param trackContributions remember relations of every class, so it can be reprocessed later
+     * @param rollupDepths       package depths to roll up package usages to
+     */
+    ClassesCollector(List<String> packagePrefixes, Log logger, boolean trackContributions, List<Integer> rollupDepths) {
+        this.packagePrefixes = packagePrefixes;
+        this.logger = logger;
+        this.trackContributions = trackContributions;
+        this.libraries = new LibraryClasses(logger);
+        this.hierarchy = new ClassHierarchyIndex(libraries);
+        this.packageTree = new PackageTree(rollupDepths);
+        this.rollups = !rollupDepths.isEmpty();
+    }
+
+    /**
+     * Blank prefix would match every class.
+     */
+    static void checkPackagePrefixes(List<String> packagePrefixes) {
+        if (packagePrefixes == null || packagePrefixes.isEmpty()) {
+            throw new IllegalArgumentException("Empty config package prefixes");
+        } else {
+            for (String packagePrefix : packagePrefixes) {
+                if (packagePrefix == null || packagePrefix.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Empty config package prefix");
+                }
+            }
+        }
+    }
+
+    Map<Integer, Link<String, String>> getClasses() {
+        return classes;
+    }
+
+    Map<Integer, Link<String, ExceptionEnt>> getPackageUsesException() {
+        return packageUsesException;
+    }
+
+    Map<String, Classinfo> getClassesInfo() {
+        return classesInfo;
+    }
+
+    /**
+     * Every class relation counts for modules of its own classes, whatever packages they are in.
+     *
+     * @return module -> used module -> usages, sorted by names
+     */
+    Map<String, Map<String, Integer>> getModuleUsages() {
+        Map<String, Map<String, Integer>> result = new TreeMap<>();
+        for (Link<String, String> link : classes.values()) {
+            Classinfo from = classesInfo.get(link.getFrom());
+            Classinfo to = classesInfo.get(link.getTo());
+            if (from != null && to != null && !from.moduleName.equals(to.moduleName)) {
+                result.computeIfAbsent(from.moduleName, k -> new TreeMap<>())
+                        .merge(to.moduleName, link.getCount(), Integer::sum);
+            }
+        }
+        return result;
+    }
+
+    PackageTree getPackageTree() {
+        return packageTree;
+    }
+
+    Map<Path, String> getClassesDirs() {
+        return classesDirs;
+    }
+
+    void collect(List<MavenProject> modules) {
+        try {
+            for (MavenProject module : modules) {
+                processProject(module);
+            }
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MavenStructureException(e);
+        }
+        classifyRelations();
+    }
+
+    /**
+     * @return the class file itself or known class files of a directory, which may be deleted already
+     */
+    Set<Path> knownClassFiles(Path path) {
+        if (path.getFileName().toString().endsWith(".class")) {
+            return Collections.singleton(path);
+        }
+        return classFiles.keySet().stream()
+                .filter(clazz -> clazz.startsWith(path))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Replaces everything the class file has contributed with its current content, or drops it if the file is deleted.
+     * If the file can not be read, collected data stay unchanged.
+     */
+    void reprocessClassFile(Path clazz) {
+        JavaClass javaClass = Files.exists(clazz) ? readClass(clazz) : null;
+        String oldClassName = classFiles.remove(clazz);
+        if (oldClassName != null) {
+            forgetClass(oldClassName);
+        }
+        if (javaClass != null) {
+            classesDirs.entrySet().stream()
+                    .filter(dir -> clazz.startsWith(dir.getKey()))
+                    .findFirst()
+                    .ifPresent(dir -> processClassFile(dir.getValue(), clazz, javaClass));
+        }
+    }
+
+    private void forgetClass(String cn) {
+        Classinfo info = classesInfo.remove(cn);
+        hierarchy.remove(cn);
+        if (info != null && rollups) {
+            packageTree.addClass(getPackage(cn), -1);
+        }
+        touchedClasses.add(cn);
+        classLinksByClass.getOrDefault(cn, Collections.emptyList()).forEach(key -> {
+            Link<String, String> link = classes.get(key);
+            decCount(classes, key);
+            if (link != null && !classes.containsKey(key)) {
+                unindexTarget(link.getTo(), key);
+            }
+            touchedLinks.add(key);
+        });
+        usedPackagesByClass.getOrDefault(cn, Collections.emptyList())
+                .forEach(targetPn -> packageTree.addUsage(getPackage(cn), targetPn, -1));
+        classLinksByClass.remove(cn);
+        usedPackagesByClass.remove(cn);
+    }
+
+    private void unindexTarget(String targetName, Integer key) {
+        Set<Integer> keys = classLinksByTarget.get(targetName);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                classLinksByTarget.remove(targetName);
+            }
+        }
+    }
+
+    private static <F, T> void decCount(Map<Integer, Link<F, T>> links, Integer key) {
+        decCount(links, key, 1);
+    }
+
+    private static <F, T> void decCount(Map<Integer, Link<F, T>> links, Integer key, int delta) {
+        Link<F, T> link = links.get(key);
+        if (link != null) {
+            link.addCount(-delta);
+            if (link.getCount() <= 0) {
+                links.remove(key);
+            }
+        }
+    }
+
+    private void processProject(MavenProject module) throws DependencyResolutionRequiredException {
+        module.getCompileClasspathElements().forEach(cpe -> {
+            if (cpe.endsWith(".jar")) {
+                libraries.addJar(cpe);
+            } else if (Paths.get(cpe).toFile().exists() &&
+                    cpe.equals(module.getBasedir().getAbsolutePath() + File.separator + "target" + File.separator + "classes")) {
+                classesDirs.put(Paths.get(cpe), module.getName());
+                try (Stream<Path> pathStream = Files.walk(Paths.get(cpe))) {
+                    pathStream
+                            .filter(path -> path.getFileName().toString().endsWith(".class"))
+                            .forEach(clazz -> parseClass(module.getName(), clazz));
+                } catch (IOException e) {
+                    throw new ClassReadingException(e);
+                }
+            }
+        });
+    }
+
+    private void parseClass(String moduleName, Path clazz) {
+        processClassFile(moduleName, clazz, readClass(clazz));
+    }
+
+    private JavaClass readClass(Path clazz) {
+        try {
+            return new ClassParser(clazz.toAbsolutePath().toString()).parse();
+        } catch (ClassFormatException | IOException e) {
+            throw new ClassReadingException(e);
+        }
+    }
+
+    private void processClassFile(String moduleName, Path clazz, JavaClass javaClass) {
+        proccessClass(moduleName, javaClass);
+        if (trackContributions) {
+            classFiles.put(clazz, javaClass.getClassName());
+        }
+    }
+
+    /**
+     * Relation types and exception usages need the whole hierarchy, so they are resolved after all modules are scanned.
+     */
+    void classifyRelations() {
+        packageUsesException.clear();
+        exceptionsByLink.clear();
+        touchedClasses.clear();
+        touchedLinks.clear();
+        new ArrayList<>(classes.keySet()).forEach(this::classifyRelation);
+    }
+
+    /**
+     * Classifies again only relations which may have changed since the last classification: relations of reprocessed
+     * classes and relations from or to their subtypes, whose hierarchy has changed with them.
+     */
+    void classifyTouchedRelations() {
+        Set<Integer> keys = new HashSet<>(touchedLinks);
+        for (String cn : hierarchy.withSubtypes(touchedClasses)) {
+            keys.addAll(classLinksByClass.getOrDefault(cn, Collections.emptyList()));
+            keys.addAll(classLinksByTarget.getOrDefault(cn, Collections.emptySet()));
+        }
+        touchedClasses.clear();
+        touchedLinks.clear();
+        keys.forEach(this::classifyRelation);
+    }
+
+    private void classifyRelation(Integer key) {
+        Link<String, ExceptionEnt> oldExcLink = exceptionsByLink.remove(key);
+        if (oldExcLink != null) {
+            decCount(packageUsesException, oldExcLink.hashCode(), oldExcLink.getCount());
+        }
+
+        Link<String, String> link = classes.get(key);
+        if (link == null) {
+            return;
+        }
+        classes.put(key, new Link<>(link.getFrom(), link.getTo(), link.getCount(),
+                relationType(link.getFrom(), link.getTo())));
+
+        if (hierarchy.isThrowable(link.getTo())) {
+            Link<String, ExceptionEnt> excLink = new Link<>(getPackage(link.getFrom()), new ExceptionEnt(link.getTo()), 0);
+            packageUsesException.computeIfAbsent(excLink.hashCode(), k -> excLink).addCount(link.getCount());
+            if (trackContributions) {
+                exceptionsByLink.put(key, new Link<>(excLink.getFrom(), excLink.getTo(), link.getCount()));
+            }
+        }
+    }
+
+    private RelationType relationType(String from, String to) {
+        if (hierarchy.implementsInterface(from, to)) {
+            return RelationType.IMPLEMENTS;
+        } else if (hierarchy.extendsClass(from, to)) {
+            return RelationType.EXTENDS;
+        }
+        return null;
+    }
+
+    static String getPackage(String className) {
+        int idx = className.lastIndexOf('.');
+        return idx < 0 ? "" : className.substring(0, idx);
+    }
+
+    private void proccessClass(String moduleName, JavaClass javaClass) {
+
+        String cn = javaClass.getClassName();
+        String pn = javaClass.getPackageName();
+
+        boolean classIsUtility = isClassIsUtility(javaClass);
+
+        List<String> annotations = new ArrayList<>();
+        for (AnnotationEntry annotation : javaClass.getAnnotationEntries()) {
+            annotations.add(Utility.typeSignatureToString(annotation.getAnnotationType(), false));
+        }
+        boolean hasMain = Arrays.stream(javaClass.getMethods())
+                .anyMatch(method -> method.getName().equals("main") && method.isPublic() && method.isStatic()
+                        && method.getSignature().equals("([Ljava/lang/String;)V"));
+
+        classesInfo.put(cn, new Classinfo(moduleName, cn, javaClass.isInterface(), javaClass.isEnum(), classIsUtility,
+                javaClass.isPublic(), hasMain, annotations));
+        hierarchy.add(javaClass);
+        if (trackContributions) {
+            touchedClasses.add(cn);
+        }
+
+        if (rollups) {
+            packageTree.addClass(pn, 1);
+        }
+
+        ConstantPool constantPool = javaClass.getConstantPool();
+        for (Constant c : constantPool.getConstantPool()) {
+            if (c instanceof ConstantClass) {
+                ConstantClass cc = (ConstantClass) c;
+                String cName = cc.getBytes(constantPool);
+                if (cName.startsWith("[L")) {
+                    cName = cName.substring(2, cName.length() - 1);
+                }
+
+                String targetPn = cName;
+                if (cName.lastIndexOf('/') >= 0) {
+                    targetPn = cName.substring(0, cName.lastIndexOf('/')).replace("/", ".");
+                }
+
+                for (String packagePrefix : packagePrefixes) {
+                    if (targetPn.startsWith(packagePrefix)) {
+
+                        String tcn = cName.replace("/", ".");
+                        if (!tcn.equals(cn)) {
+
+                            Link<String, String> link = new Link<>(cn, tcn, 1);
+
+                            if (link.equals(classes.get(link.hashCode()))) {
+                                classes.get(link.hashCode()).incCount();
+                            } else {
+                                classes.put(link.hashCode(), link);
+                            }
+                            if (trackContributions) {
+                                classLinksByClass.computeIfAbsent(cn, k -> new ArrayList<>()).add(link.hashCode());
+                                classLinksByTarget.computeIfAbsent(tcn, k -> new HashSet<>()).add(link.hashCode());
+                            }
+                        }
+
+                        if (rollups && !targetPn.equals(pn)) {
+                            packageTree.addUsage(pn, targetPn, 1);
+                            if (trackContributions) {
+                                usedPackagesByClass.computeIfAbsent(cn, k -> new ArrayList<>()).add(targetPn);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+    }
+
+    private boolean isClassIsUtility(JavaClass javaClass) {
+        boolean classIsUtility = false;
+        if (javaClass.isFinal()) {
+
+            List<Method> methodList = Arrays.asList(javaClass.getMethods());
+            Optional<Method> constructor = methodList.stream()
+                    .filter(method -> method.getName().equals("<init>"))
+                    .findFirst();
+
+            if (constructor.isPresent() && constructor.get().isPrivate()) {
+
+                StringBuilder errors = new StringBuilder();
+
+                boolean allMethodsAreStatic = true;
+                for (Method method : javaClass.getMethods()) {
+                    if (!method.getName().equals("<init>") && !method.isStatic()) {
+                        allMethodsAreStatic = false;
+                        errors.append("\t").append(method.getName()).append(" is not static\n");
+                        break;
+                    }
+                }
+
+                boolean allFieldsAreSimpleConstants = true;
+                for (Field field : javaClass.getFields()) {
+                    if (!fieldIsSimpleConstant(field)) {
+                        allFieldsAreSimpleConstants = false;
+                        errors.append("\t").append(field.getName()).append(" is not simple constant\n");
+                        break;
+                    }
+                }
+
+                if (errors.length() > 0) {
+                    errors.insert(0, "\n");
+                }
+
+                classIsUtility = allMethodsAreStatic && allFieldsAreSimpleConstants;
+                if (!classIsUtility) {
+                    logger.info("Is final not utility: " + javaClass.getClassName() + " " + errors.toString());
+                }
+            }
+
+        }
+        return classIsUtility;
+    }
+
+    private boolean fieldIsSimpleConstant(Field field) {
+        return field.isStatic()
+                && field.isFinal()
+                && (field.getType() instanceof BasicType
+                || field.getType().equals(Type.STRING)
+                || (field.getType() instanceof ObjectType
+                && ((ObjectType) field.getType()).getClassName().equals("org.slf4j.Logger"))
+        );
+    }
+
+}
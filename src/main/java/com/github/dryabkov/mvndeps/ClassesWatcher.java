@@ -0,0 +1,157 @@
+package com.github.dryabkov.mvndeps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches classes directories recursively and reports touched class files in debounced batches.
+ * Directories on the way to every classes directory are watched too, so a classes directory deleted
+ * by {@code mvn clean} is watched again as soon as it is created.
+ */
+class ClassesWatcher implements Closeable {
+
+    private final WatchService watchService;
+
+    private final long debounceMillis;
+
+    private final Set<Path> roots;
+
+    private long lastChangeMillis;
+
+    // how many levels above every classes directory are watched: target and the module directory
+    private static final int WATCHED_PARENTS = 2;
+
+    ClassesWatcher(Collection<Path> roots, long debounceMillis) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.debounceMillis = debounceMillis;
+        this.roots = roots.stream().map(Path::toAbsolutePath).collect(Collectors.toSet());
+        Set<Path> changed = new HashSet<>();
+        for (Path root : this.roots) {
+            Path top = root;
+            for (int i = 0; i < WATCHED_PARENTS && top.getParent() != null; i++) {
+                top = top.getParent();
+            }
+            register(top, changed);
+        }
+    }
+
+    /**
+     * Blocks until some class files are created, modified or deleted and no more changes come during debounce time.
+     *
+     * @return touched class files, deleted ones included, and deleted directories
+     */
+    Set<Path> awaitChanges() throws InterruptedException, IOException {
+        Set<Path> changed = new HashSet<>();
+        while (changed.isEmpty()) {
+            WatchKey key = watchService.take();
+            while (key != null) {
+                lastChangeMillis = System.currentTimeMillis();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        register(dir, changed);
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                        register(path, changed);
+                    } else if (isInRoot(path) && path.getFileName().toString().endsWith(".class")) {
+                        changed.add(path);
+                    }
+                }
+                if (!key.reset()) {
+                    // the directory is deleted, its class files are gone without events
+                    changed.add(dir);
+                    if (Files.isDirectory(dir)) {
+                        register(dir, changed);
+                    }
+                }
+                key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return time of the last change of the batch returned by {@link #awaitChanges()}
+     */
+    long getLastChangeMillis() {
+        return lastChangeMillis;
+    }
+
+    /**
+     * Watches a directory inside a classes directory with all its subdirectories and adds its class files to changed,
+     * or watches a directory on the way to a classes directory for creation of the next one.
+     */
+    private void register(Path dir, Set<Path> changed) throws IOException {
+        if (isInRoot(dir)) {
+            registerAll(dir, changed);
+            return;
+        }
+        for (Path root : roots) {
+            if (root.startsWith(dir)) {
+                try {
+                    dir.register(watchService, ENTRY_CREATE);
+                } catch (NoSuchFileException e) {
+                    return;
+                }
+                // the next directory may be created before the registration
+                Path next = dir.resolve(root.getName(dir.getNameCount()));
+                if (Files.isDirectory(next)) {
+                    register(next, changed);
+                }
+            }
+        }
+    }
+
+    private boolean isInRoot(Path path) {
+        return roots.stream().anyMatch(path::startsWith);
+    }
+
+    /**
+     * Every directory is registered before it is listed, so files created meanwhile are either listed or reported.
+     */
+    private void registerAll(Path dir, Set<Path> changed) throws IOException {
+        List<Path> children;
+        try {
+            dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            try (Stream<Path> pathStream = Files.list(dir)) {
+                children = pathStream.collect(Collectors.toList());
+            }
+        } catch (NoSuchFileException e) {
+            // deleted meanwhile, its key is reported as invalid
+            return;
+        }
+        for (Path child : children) {
+            if (Files.isDirectory(child)) {
+                registerAll(child, changed);
+            } else if (child.getFileName().toString().endsWith(".class")) {
+                changed.add(child);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.dryabkov.mvndeps;
 
+import java.util.List;
+
 public class Classinfo {
 
     public final String name;
@@ -12,11 +14,24 @@ public class Classinfo {
 
     public final String moduleName;
 
-    public Classinfo(String moduleName, String name, boolean isInterface, boolean isEnum, boolean isUtility) {
+    public final boolean isPublic;
+
+    public final boolean hasMain;
+
+    /**
+     * Full names of class level annotations.
+     */
+    public final List<String> annotations;
+
+    public Classinfo(String moduleName, String name, boolean isInterface, boolean isEnum, boolean isUtility,
+                     boolean isPublic, boolean hasMain, List<String> annotations) {
         this.name = name;
         this.isInterface = isInterface;
         this.isEnum = isEnum;
         this.isUtility = isUtility;
         this.moduleName = moduleName;
+        this.isPublic = isPublic;
+        this.hasMain = hasMain;
+        this.annotations = annotations;
     }
 }
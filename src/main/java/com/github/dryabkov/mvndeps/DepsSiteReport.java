@@ -0,0 +1,95 @@
+package com.github.dryabkov.mvndeps;
+
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.AbstractMavenReport;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Site report of collected classes and relations.
+ * The page itself holds only totals, details are loaded from JSON shards while browsing.
+ */
+@Mojo(
+        name = "report",
+        requiresDependencyResolution = ResolutionScope.RUNTIME,
+        aggregator = true
+)
+public class DepsSiteReport extends AbstractMavenReport {
+
+    private static final String SHARDS_DIR = "deps-report";
+
+    @Parameter(property = "packagePrefixes", required = true)
+    private List<String> packagePrefixes;
+
+    /**
+     * Rows shown at once in every table of the page.
+     */
+    @Parameter(property = "reportPageSize", defaultValue = "200")
+    private int reportPageSize;
+
+    @Override
+    public String getOutputName() {
+        return "deps";
+    }
+
+    @Override
+    public String getName(Locale locale) {
+        return "Classes dependencies";
+    }
+
+    @Override
+    public String getDescription(Locale locale) {
+        return "Direct classes usage between modules and packages";
+    }
+
+    @Override
+    protected void executeReport(Locale locale) {
+        ClassesCollector.checkPackagePrefixes(packagePrefixes);
+        List<MavenProject> modules = project.getCollectedProjects().isEmpty()
+                ? Collections.singletonList(project) : project.getCollectedProjects();
+
+        ClassesCollector collector = new ClassesCollector(packagePrefixes, getLog(), false, Collections.emptyList());
+        collector.collect(modules);
+
+        SiteReportShards shards = new SiteReportShards(new File(getReportOutputDirectory(), SHARDS_DIR), collector);
+        shards.write();
+
+        Sink sink = getSink();
+        sink.head();
+        sink.title();
+        sink.text(getName(locale));
+        sink.title_();
+        sink.head_();
+
+        sink.body();
+        sink.section1();
+        sink.sectionTitle1();
+        sink.text(getName(locale));
+        sink.sectionTitle1_();
+        sink.paragraph();
+        sink.text(String.format("%d modules, %d packages, %d classes, %d relations",
+                shards.getModulesCount(), shards.getPackagesCount(),
+                collector.getClassesInfo().size(), collector.getClasses().size()));
+        sink.paragraph_();
+        sink.rawText("<div id=\"deps-report\" data-base=\"" + SHARDS_DIR + "/\" data-page-size=\"" + reportPageSize + "\">"
+                + "<p><input id=\"deps-search\" type=\"text\" size=\"60\""
+                + " placeholder=\"Search package, class name prefix or qualified class name\"/></p>"
+                + "<div id=\"deps-search-results\"></div>"
+                + "<div id=\"deps-modules\"></div>"
+                + "<div id=\"deps-details\"></div>"
+                + "</div>"
+                + "<script type=\"text/javascript\" src=\"" + SHARDS_DIR + "/" + SiteReportShards.SCRIPT + "\"></script>");
+        sink.section1_();
+        sink.body_();
+
+        sink.flush();
+        sink.close();
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.dryabkov.mvndeps;
+
+import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads headers of not scanned classes from compile classpath jars and from the JDK with BCEL,
+ * without loading them.
+ */
+class LibraryClasses {
+
+    private final Log logger;
+
+    private final Set<String> jars = new LinkedHashSet<>();
+
+    // class file name -> jar, built on first lookup
+    private Map<String, String> jarByEntry;
+
+    // package path -> JDK module directory, built on first lookup
+    private Map<String, Path> jdkPackages;
+
+    LibraryClasses(Log logger) {
+        this.logger = logger;
+    }
+
+    void addJar(String jar) {
+        jars.add(jar);
+        jarByEntry = null;
+    }
+
+    /**
+     * @return parsed class or null if it is not found or can not be read
+     */
+    JavaClass find(String className) {
+        String entryName = className.replace('.', '/') + ".class";
+        try {
+            String jar = jarByEntry().get(entryName);
+            if (jar != null) {
+                return new ClassParser(jar, entryName).parse();
+            }
+            Path jdkModule = jdkPackages().get(entryName.substring(0, Math.max(entryName.lastIndexOf('/'), 0)));
+            if (jdkModule != null && Files.exists(jdkModule.resolve(entryName))) {
+                try (InputStream in = Files.newInputStream(jdkModule.resolve(entryName))) {
+                    return new ClassParser(in, entryName).parse();
+                }
+            }
+        } catch (ClassFormatException | IOException e) {
+            logger.debug("Fail to read library class " + className + ": " + e);
+            return null;
+        }
+        return null;
+    }
+
+    private Map<String, String> jarByEntry() {
+        if (jarByEntry == null) {
+            jarByEntry = new HashMap<>();
+            // before java 9 the JDK classes are in rt.jar
+            File rtJar = new File(System.getProperty("java.home"), "lib" + File.separator + "rt.jar");
+            if (rtJar.exists()) {
+                jars.add(rtJar.getAbsolutePath());
+            }
+            for (String jar : jars) {
+                if (new File(jar).isFile()) {
+                    // a broken jar must not hide classes of the others
+                    try (ZipFile zipFile = new ZipFile(jar)) {
+                        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                        while (entries.hasMoreElements()) {
+                            String name = entries.nextElement().getName();
+                            if (name.endsWith(".class")) {
+                                jarByEntry.putIfAbsent(name, jar);
+                            }
+                        }
+                    } catch (IOException e) {
+                        logger.warn("Fail to read jar " + jar + ", its classes are not resolved: " + e);
+                    }
+                }
+            }
+        }
+        return jarByEntry;
+    }
+
+    private Map<String, Path> jdkPackages() {
+        if (jdkPackages == null) {
+            jdkPackages = new HashMap<>();
+            FileSystem jrt;
+            try {
+                jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            } catch (FileSystemNotFoundException | ProviderNotFoundException e) {
+                return jdkPackages;
+            }
+            // /packages/<package>/<module> links name modules of every package
+            try (Stream<Path> packages = Files.list(jrt.getPath("/packages"))) {
+                for (Path pkg : (Iterable<Path>) packages::iterator) {
+                    try (Stream<Path> modules = Files.list(pkg)) {
+                        modules.findFirst().ifPresent(module -> jdkPackages.put(
+                                pkg.getFileName().toString().replace('.', '/'),
+                                jrt.getPath("/modules", module.getFileName().toString())));
+                    } catch (IOException e) {
+                        logger.warn("Fail to read JDK package " + pkg + ", its classes are not resolved: " + e);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Fail to read JDK packages, JDK classes are not resolved: " + e);
+            }
+        }
+        return jdkPackages;
+    }
+}
@@ -50,6 +50,10 @@ public class Link<F, T> {
         count++;
     }
 
+    void addCount(int delta) {
+        count += delta;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,140 @@
+package com.github.dryabkov.mvndeps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prefix tree of packages with class counters and package usages rolled up to configured depths.
+ * Rollups are updated on every usage, so coarse views need no pass over collected relations.
+ * Depth is the number of package name parts: com.acme.x has depth 3.
+ */
+class PackageTree {
+
+    private static class Node {
+
+        private final String name;
+
+        private final int depth;
+
+        // path[d] is the ancestor of depth d, path[depth] is the node itself
+        private final Node[] path;
+
+        // last name part -> subpackage
+        private final Map<String, Node> children = new HashMap<>();
+
+        private int classes;
+
+        private int subtreeClasses;
+
+        private Node(Node parent, String name) {
+            this.name = name;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.path = new Node[depth + 1];
+            if (parent != null) {
+                System.arraycopy(parent.path, 0, path, 0, depth);
+            }
+            path[depth] = this;
+        }
+
+        private Node ancestor(int depth) {
+            return path[Math.min(depth, this.depth)];
+        }
+    }
+
+    private final Node root = new Node(null, "");
+
+    private final List<Integer> depths;
+
+    // depth -> from -> to -> usages
+    private final Map<Integer, Map<Node, Map<Node, Integer>>> packageUsages = new TreeMap<>();
+
+    PackageTree(List<Integer> depths) {
+        this.depths = depths;
+        for (Integer depth : depths) {
+            packageUsages.put(depth, new HashMap<>());
+        }
+    }
+
+    void addClass(String packageName, int delta) {
+        Node node = node(packageName);
+        node.classes += delta;
+        for (Node ancestor : node.path) {
+            ancestor.subtreeClasses += delta;
+        }
+    }
+
+    void addUsage(String fromPackage, String toPackage, int delta) {
+        Node from = node(fromPackage);
+        Node to = node(toPackage);
+        for (Map.Entry<Integer, Map<Node, Map<Node, Integer>>> rollup : packageUsages.entrySet()) {
+            Node fromAncestor = from.ancestor(rollup.getKey());
+            Node toAncestor = to.ancestor(rollup.getKey());
+            if (fromAncestor != toAncestor) {
+                add(rollup.getValue(), fromAncestor, toAncestor, delta);
+            }
+        }
+    }
+
+    /**
+     * @return package of given depth to count of classes in it and its subpackages,
+     * shorter packages are counted without subpackages
+     */
+    Map<String, Integer> packages(int depth) {
+        Map<String, Integer> result = new TreeMap<>();
+        collectPackages(root, depth, result);
+        return result;
+    }
+
+    private static void collectPackages(Node node, int depth, Map<String, Integer> result) {
+        if (node.depth == depth) {
+            if (node.subtreeClasses > 0) {
+                result.put(node.name, node.subtreeClasses);
+            }
+            return;
+        }
+        if (node.classes > 0) {
+            result.put(node.name, node.classes);
+        }
+        for (Node child : node.children.values()) {
+            collectPackages(child, depth, result);
+        }
+    }
+
+    List<Link<String, String>> packageUsages(int depth) {
+        List<Link<String, String>> result = new ArrayList<>();
+        packageUsages.get(depth).forEach((from, usages) -> usages.forEach((to, count) ->
+                result.add(new Link<>(from.name, to.name, count))));
+        return result;
+    }
+
+    private Node node(String packageName) {
+        Node node = root;
+        if (!packageName.isEmpty()) {
+            for (String part : packageName.split("\\.")) {
+                Node parent = node;
+                node = parent.children.computeIfAbsent(part,
+                        k -> new Node(parent, parent == root ? part : parent.name + "." + part));
+            }
+        }
+        return node;
+    }
+
+    private static void add(Map<Node, Map<Node, Integer>> usages, Node from, Node to, int delta) {
+        Map<Node, Integer> fromUsages = usages.computeIfAbsent(from, k -> new HashMap<>());
+        fromUsages.merge(to, delta, PackageTree::sum);
+        if (fromUsages.isEmpty()) {
+            usages.remove(from);
+        }
+    }
+
+    /**
+     * Counters dropping to zero are removed from maps.
+     */
+    private static Integer sum(Integer a, Integer b) {
+        int sum = a + b;
+        return sum == 0 ? null : sum;
+    }
+}
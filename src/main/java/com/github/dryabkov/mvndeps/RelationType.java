@@ -1,5 +1,5 @@
 package com.github.dryabkov.mvndeps;
 
 public enum RelationType {
-    IMPLEMENTS
+    IMPLEMENTS, EXTENDS
 }
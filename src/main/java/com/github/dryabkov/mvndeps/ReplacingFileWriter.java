@@ -0,0 +1,49 @@
+package com.github.dryabkov.mvndeps;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes to a temporary file next to the target and moves it in place on close,
+ * so readers never see a partially written file.
+ */
+class ReplacingFileWriter extends BufferedWriter {
+
+    private final Path target;
+
+    private final Path temp;
+
+    private boolean closed;
+
+    static ReplacingFileWriter create(File file) throws IOException {
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        return new ReplacingFileWriter(target, temp);
+    }
+
+    private ReplacingFileWriter(Path target, Path temp) throws IOException {
+        super(new FileWriter(temp.toFile()));
+        this.target = target;
+        this.temp = temp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        super.close();
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
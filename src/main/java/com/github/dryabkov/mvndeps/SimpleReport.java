@@ -1,22 +1,10 @@
 package com.github.dryabkov.mvndeps;
 
 import com.github.dryabkov.mvndeps.analyzer.Check;
+import com.github.dryabkov.mvndeps.analyzer.Reachability;
 import com.github.dryabkov.mvndeps.entities.ExceptionEnt;
 import com.github.dryabkov.mvndeps.exceptions.ClassReadingException;
-import com.github.dryabkov.mvndeps.exceptions.MavenStructureException;
 import com.github.dryabkov.mvndeps.exceptions.ResultWritingException;
-import org.apache.bcel.classfile.ClassFormatException;
-import org.apache.bcel.classfile.ClassParser;
-import org.apache.bcel.classfile.Constant;
-import org.apache.bcel.classfile.ConstantClass;
-import org.apache.bcel.classfile.ConstantPool;
-import org.apache.bcel.classfile.Field;
-import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.classfile.Method;
-import org.apache.bcel.generic.BasicType;
-import org.apache.bcel.generic.ObjectType;
-import org.apache.bcel.generic.Type;
-import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.logging.Log;
@@ -30,16 +18,20 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Mojo(
         name = "deps",
@@ -69,12 +61,88 @@ public class SimpleReport extends AbstractMojo {
     @Parameter(property = "outputPackagesDiagramFile", required = true)
     private File outputPackagesDiagramFile;
 
+    /**
+     * Keep running after the report is written and update it on every compilation.
+     */
+    @Parameter(property = "watch", defaultValue = "false")
+    private boolean watch;
+
+    @Parameter(property = "watchDebounceMillis", defaultValue = "300")
+    private long watchDebounceMillis;
+
+    /**
+     * Time for analysis of the packages diagram after each compilation in watch mode, 0 for unlimited.
+     * The diagram is analyzed again as a whole, so a large project gets dashed edges rather than a stalled watch.
+     * With the default debounce the report is updated within a second after the compilation.
+     */
+    @Parameter(property = "watchCheckTimeBudgetMillis", defaultValue = "500")
+    private long watchCheckTimeBudgetMillis;
+
+    /**
+     * Time for analysis of the packages diagram, 0 for unlimited. Edges left when it is over are drawn dashed.
+     */
+    @Parameter(property = "checkTimeBudgetSeconds", defaultValue = "0")
+    private long checkTimeBudgetSeconds;
+
+    /**
+     * How many edges of the packages diagram may be checked for alternative paths, 0 for unlimited.
+     */
+    @Parameter(property = "checkMaxPathSearches", defaultValue = "0")
+    private int checkMaxPathSearches;
+
+    /**
+     * Classes not reachable from roots, the analysis runs only if this or outputDeadModulesFile is set.
+     */
+    @Parameter(property = "outputUnreachableClassesFile")
+    private File outputUnreachableClassesFile;
+
+    /**
+     * Modules none of which classes is reachable from roots.
+     */
+    @Parameter(property = "outputDeadModulesFile")
+    private File outputDeadModulesFile;
+
+    /**
+     * Classes with main method are reachability roots.
+     */
+    @Parameter(property = "rootMainClasses", defaultValue = "true")
+    private boolean rootMainClasses;
+
+    /**
+     * Regular expressions, classes annotated with a matching annotation are reachability roots.
+     */
+    @Parameter(property = "rootAnnotations")
+    private List<String> rootAnnotations = new ArrayList<>();
 
-    private Map<String, AtomicInteger> containedPackages = new HashMap<>();
-    private Map<Integer, Link<String, String>> packages = new HashMap<>();
-    private Map<Integer, Link<String, String>> classes = new HashMap<>();
-    private Map<Integer, Link<String, ExceptionEnt>> packageUsesException = new HashMap<>();
-    private Map<String, Classinfo> classesInfo = new HashMap<>();
+    /**
+     * Regular expressions, classes with matching full name are reachability roots.
+     */
+    @Parameter(property = "rootClassPatterns")
+    private List<String> rootClassPatterns = new ArrayList<>();
+
+    /**
+     * Public API packages, their public classes are reachability roots.
+     */
+    @Parameter(property = "rootPackages")
+    private List<String> rootPackages = new ArrayList<>();
+
+    /**
+     * Directory for module and package rollups: packages-N.txt and packages-N.dot for every depth from rollupDepths,
+     * modules.txt and modules.dot.
+     */
+    @Parameter(property = "outputRollupsDir")
+    private File outputRollupsDir;
+
+    /**
+     * Package depths to roll package usages up to, 3 means com.acme.x.
+     */
+    @Parameter(property = "rollupDepths")
+    private List<Integer> rollupDepths = new ArrayList<>();
+
+    private ClassesCollector collector;
+
+    // output files are replaced as a whole instead of being appended to
+    private boolean rewriting;
 
     /**
      * The Maven Session.
@@ -107,6 +175,13 @@ public class SimpleReport extends AbstractMojo {
 
     private Writer createFileWriter(File file, String header) throws IOException {
         mkDirIfNotExists(file.getParentFile());
+        if (rewriting) {
+            Writer fileWriter = ReplacingFileWriter.create(file);
+            if (header != null) {
+                fileWriter.write(header + "\n");
+            }
+            return fileWriter;
+        }
         boolean writeHeader = createNewFileIfNotExists(file);
         Writer fileWriter = new BufferedWriter(new FileWriter(file, true));
         if (writeHeader && header != null) {
@@ -120,24 +195,189 @@ public class SimpleReport extends AbstractMojo {
 
         logger = getLog();
         checkConfiguration();
+        collector = new ClassesCollector(packagePrefixes, logger, watch,
+                outputRollupsDir == null ? Collections.emptyList() : rollupDepths);
+        collector.collect(project.getCollectedProjects());
+        writeClassesInfo();
+        writeClassRelations();
+        writeExceptions();
+        writePackageDiagram();
+        writeUnreachable();
+        writeRollups();
+
+        if (watch) {
+            watchClasses();
+        }
+    }
+
+    private void watchClasses() {
+        try (ClassesWatcher watcher = new ClassesWatcher(collector.getClassesDirs().keySet(), watchDebounceMillis)) {
+            logger.info("Watching " + collector.getClassesDirs().size() + " classes directories, press Ctrl+C to stop");
+            // class files which could not be read, e.g. written by the compiler just now, are retried with the next batch
+            Set<Path> failed = new HashSet<>();
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new HashSet<>(failed);
+                for (Path path : watcher.awaitChanges()) {
+                    changed.addAll(collector.knownClassFiles(path));
+                }
+                failed.clear();
+                for (Path clazz : changed) {
+                    try {
+                        collector.reprocessClassFile(clazz);
+                    } catch (ClassReadingException e) {
+                        logger.warn("Fail to read " + clazz + ", will retry: " + e.getMessage());
+                        failed.add(clazz);
+                    }
+                }
+                collector.classifyTouchedRelations();
+                rewriteResults();
+                // debounce time included, this is how long the report lags behind the compilation
+                logger.info("Updated " + changed.size() + " class files in "
+                        + (System.currentTimeMillis() - watcher.getLastChangeMillis()) + " ms after the last change");
+            }
+        } catch (IOException e) {
+            throw new ClassReadingException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Every output is regenerated from collected data as a whole, only relation classification is incremental.
+     */
+    private void rewriteResults() {
+        rewriting = true;
         writeClassesInfo();
         writeClassRelations();
         writeExceptions();
         writePackageDiagram();
+        writeUnreachable();
+        writeRollups();
     }
 
     private void writePackageDiagram() {
+        Collection<Link<String, String>> relations = collector.getClasses().values();
+        long timeBudgetMillis = TimeUnit.SECONDS.toMillis(checkTimeBudgetSeconds);
+        if (rewriting) {
+            // relations to just deleted classes stay until their users are recompiled
+            Map<String, Classinfo> infos = collector.getClassesInfo();
+            relations = relations.stream()
+                    .filter(link -> infos.containsKey(link.getFrom()) && infos.containsKey(link.getTo()))
+                    .collect(Collectors.toList());
+            timeBudgetMillis = watchCheckTimeBudgetMillis;
+        }
         try (Writer out = createFileWriter(outputPackagesDiagramFile, null)) {
-            new Check(classesInfo, classes.values(), logger)
+            new Check(collector.getClassesInfo(), relations, logger, timeBudgetMillis, checkMaxPathSearches)
                     .main(out);
         } catch (IOException e) {
             throw new ResultWritingException(e);
         }
     }
 
+    private void writeUnreachable() {
+        if (outputUnreachableClassesFile == null && outputDeadModulesFile == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Reachability reachability = new Reachability(collector.getClassesInfo(), collector.getClasses().values());
+        BitSet reached = reachability.reachableFrom(Reachability.roots(rootMainClasses,
+                compile(rootAnnotations), compile(rootClassPatterns), rootPackages));
+        logger.info(String.format("Reachability: %d of %d classes reached in %d ms",
+                reached.cardinality(), collector.getClassesInfo().size(), System.currentTimeMillis() - start));
+        if (reached.isEmpty() && !collector.getClassesInfo().isEmpty()) {
+            logger.warn("No reachability root is found, so every class and module is reported unreachable."
+                    + " Set rootAnnotations, rootClassPatterns or rootPackages to the entry points of the project");
+        } else if (!rewriting && rootAnnotations.isEmpty() && rootClassPatterns.isEmpty() && rootPackages.isEmpty()) {
+            logger.warn("Only classes with main method are reachability roots, classes used only by frameworks,"
+                    + " reflection or other projects are reported unreachable."
+                    + " Set rootAnnotations, rootClassPatterns or rootPackages to include them");
+        }
+
+        if (outputUnreachableClassesFile != null) {
+            try (Writer out = createFileWriter(outputUnreachableClassesFile, "# module;class")) {
+                for (Map.Entry<String, List<String>> entry : reachability.unreachableByModule(reached).entrySet()) {
+                    for (String className : entry.getValue()) {
+                        String to = className;
+                        for (String packagePrefix : packagePrefixes) {
+                            to = to.replace(packagePrefix, "");
+                        }
+                        out.write(String.format("%s;%s\n", entry.getKey(), to));
+                    }
+                }
+            } catch (IOException e) {
+                throw new ResultWritingException(e);
+            }
+        }
+
+        if (outputDeadModulesFile != null) {
+            try (Writer out = createFileWriter(outputDeadModulesFile, "# module")) {
+                for (String module : reachability.deadModules(reached)) {
+                    out.write(module + "\n");
+                }
+            } catch (IOException e) {
+                throw new ResultWritingException(e);
+            }
+        }
+    }
+
+    private void writeRollups() {
+        if (outputRollupsDir == null) {
+            return;
+        }
+        PackageTree packageTree = collector.getPackageTree();
+        for (Integer depth : rollupDepths) {
+            List<Link<String, String>> usages = packageTree.packageUsages(depth);
+            writeRollup(new File(outputRollupsDir, "packages-" + depth + ".txt"), "# package;package;count", usages);
+            writeRollupDiagram(new File(outputRollupsDir, "packages-" + depth + ".dot"),
+                    packageTree.packages(depth), usages);
+        }
+
+        Map<String, Integer> modules = new TreeMap<>();
+        collector.getClassesInfo().values().forEach(info -> modules.merge(info.moduleName, 1, Integer::sum));
+        List<Link<String, String>> usages = new ArrayList<>();
+        collector.getModuleUsages().forEach((from, counts) ->
+                counts.forEach((to, count) -> usages.add(new Link<>(from, to, count))));
+        writeRollup(new File(outputRollupsDir, "modules.txt"), "# module;module;count", usages);
+        writeRollupDiagram(new File(outputRollupsDir, "modules.dot"), modules, usages);
+    }
+
+    private void writeRollup(File file, String header, List<Link<String, String>> usages) {
+        try (Writer out = createFileWriter(file, header)) {
+            for (Link<String, String> link : usages) {
+                out.write(String.format("%s;%s;%d\n", link.getFrom(), link.getTo(), link.getCount()));
+            }
+        } catch (IOException e) {
+            throw new ResultWritingException(e);
+        }
+    }
+
+    /**
+     * @param nodes node name to count of classes in it
+     */
+    private void writeRollupDiagram(File file, Map<String, Integer> nodes, List<Link<String, String>> usages) {
+        try (Writer out = createFileWriter(file, null)) {
+            out.write("digraph g {");
+            out.write("node [shape=box];\n");
+            out.write("rankdir = LR;\n");
+            for (Map.Entry<String, Integer> node : nodes.entrySet()) {
+                out.write(String.format("\"%s\"[label=\"%s\\n%d classes\"];\n", node.getKey(), node.getKey(), node.getValue()));
+            }
+            for (Link<String, String> link : usages) {
+                out.write(String.format("\"%s\" -> \"%s\"[label=\"%d\"];\n", link.getFrom(), link.getTo(), link.getCount()));
+            }
+            out.write("}\n");
+        } catch (IOException e) {
+            throw new ResultWritingException(e);
+        }
+    }
+
+    private static List<Pattern> compile(List<String> regexps) {
+        return regexps.stream().map(Pattern::compile).collect(Collectors.toList());
+    }
+
     private void writeExceptions() {
         try (Writer out = createFileWriter(outputExceptionsFile, "# package;class;count")) {
-            for (Link<String, ExceptionEnt> link : packageUsesException.values()) {
+            for (Link<String, ExceptionEnt> link : collector.getPackageUsesException().values()) {
                 out.write(String.format("%s;%s;%d\n", link.getFrom(), link.getTo().getFullName(), link.getCount()));
             }
         } catch (IOException e) {
@@ -148,7 +388,7 @@ public class SimpleReport extends AbstractMojo {
     private void writeClassRelations() {
         try (Writer out = createFileWriter(outputClassesFile, "# class;class;count;reltype")) {
 
-            for (Link<String, String> link : classes.values()) {
+            for (Link<String, String> link : collector.getClasses().values()) {
                 String from = link.getFrom();
                 String to = link.getTo();
 
@@ -166,18 +406,10 @@ public class SimpleReport extends AbstractMojo {
 
     private void writeClassesInfo() {
 
-        try {
-            for (MavenProject module : project.getCollectedProjects()) {
-                processProject(module);
-            }
-        } catch (DependencyResolutionRequiredException e) {
-            throw new MavenStructureException(e);
-        }
-
         try (Writer out = createFileWriter(outputClassesInfoFile,
                 "# class;isInterface;module;isEnum;isUtility")) {
 
-            for (Classinfo info : classesInfo.values()) {
+            for (Classinfo info : collector.getClassesInfo().values()) {
                 String to = info.name;
                 for (String packagePrefix : packagePrefixes) {
                     to = to.replace(packagePrefix, "");
@@ -190,158 +422,14 @@ public class SimpleReport extends AbstractMojo {
     }
 
     private void checkConfiguration() {
-        if (packagePrefixes == null || packagePrefixes.isEmpty()) {
-            throw new IllegalArgumentException("Empty config package prefixes");
-        } else {
-            for (String packagePrefix : packagePrefixes) {
-                if (packagePrefix == null || packagePrefix.trim().isEmpty()) {
-                    throw new IllegalArgumentException("Empty config package prefix");
-                }
-            }
-        }
-    }
-
-    private void processProject(MavenProject module) throws DependencyResolutionRequiredException {
-        module.getCompileClasspathElements().forEach(cpe -> {
-            if (!cpe.endsWith(".jar") && Paths.get(cpe).toFile().exists() &&
-                    cpe.equals(module.getBasedir().getAbsolutePath() + File.separator + "target" + File.separator + "classes")) {
-                try (Stream<Path> pathStream = Files.walk(Paths.get(cpe))) {
-                    pathStream
-                            .filter(path -> path.getFileName().toString().endsWith(".class"))
-                            .forEach(clazz -> {
-                                try {
-                                    JavaClass javaClass = new ClassParser(clazz.toAbsolutePath().toString()).parse();
-                                    proccessClass(module.getName(), javaClass);
-                                } catch (ClassFormatException | IOException e) {
-                                    throw new ClassReadingException(e);
-                                }
-                            });
-                } catch (IOException e) {
-                    throw new ClassReadingException(e);
-                }
-            }
-        });
-    }
-
-    private void proccessClass(String moduleName, JavaClass javaClass) {
-
-        String cn = javaClass.getClassName();
-        String pn = javaClass.getPackageName();
-        List<String> interfaceNames = Arrays.asList(javaClass.getInterfaceNames());
-
-        boolean classIsUtility = isClassIsUtility(javaClass);
-
-        classesInfo.put(cn, new Classinfo(moduleName, cn, javaClass.isInterface(), javaClass.isEnum(), classIsUtility));
-
-        containedPackages.computeIfAbsent(pn, k -> new AtomicInteger(0)).incrementAndGet();
-
-        ConstantPool constantPool = javaClass.getConstantPool();
-        for (Constant c : constantPool.getConstantPool()) {
-            if (c instanceof ConstantClass) {
-                ConstantClass cc = (ConstantClass) c;
-                String cName = cc.getBytes(constantPool);
-                if (cName.startsWith("[L")) {
-                    cName = cName.substring(2, cName.length() - 1);
-                }
-
-                String targetPn = cName;
-                if (cName.lastIndexOf('/') >= 0) {
-                    targetPn = cName.substring(0, cName.lastIndexOf('/')).replace("/", ".");
-                }
-
-                for (String packagePrefix : packagePrefixes) {
-                    if (targetPn.startsWith(packagePrefix)) {
-
-                        String tcn = cName.replace("/", ".");
-                        if (!tcn.equals(cn)) {
-
-                            RelationType rt = null;
-                            if (interfaceNames.contains(tcn)) {
-                                rt = RelationType.IMPLEMENTS;
-                            }
-                            Link<String, String> link = new Link<>(cn, tcn, 1, rt);
-
-                            if (classes.containsValue(link)) {
-                                classes.get(link.hashCode()).incCount();
-                            } else {
-                                classes.put(link.hashCode(), link);
-                            }
-                        }
-
-                        if (!targetPn.equals(pn)) {
-                            Link<String, String> link = new Link<>(pn, targetPn, 1);
-
-                            if (!packages.containsValue(link)) {
-                                packages.put(link.hashCode(), link);
-                            } else {
-                                packages.get(link.hashCode()).incCount();
-                            }
-                        }
-
-                        if (tcn.endsWith("Exception")) {
-                            Link<String, ExceptionEnt> excLink = new Link<>(pn, new ExceptionEnt(tcn), 0);
-                            packageUsesException.computeIfAbsent(excLink.hashCode(), k -> excLink).incCount();
-                        }
-                    }
-                }
+        ClassesCollector.checkPackagePrefixes(packagePrefixes);
+        for (Integer depth : rollupDepths) {
+            if (depth == null || depth < 1) {
+                throw new IllegalArgumentException("Rollup depth must be 1 or more: " + depth);
             }
         }
-
-    }
-
-    private boolean isClassIsUtility(JavaClass javaClass) {
-        boolean classIsUtility = false;
-        if (javaClass.isFinal()) {
-
-            List<Method> methodList = Arrays.asList(javaClass.getMethods());
-            Optional<Method> constructor = methodList.stream()
-                    .filter(method -> method.getName().equals("<init>"))
-                    .findFirst();
-
-            if (constructor.isPresent() && constructor.get().isPrivate()) {
-
-                StringBuilder errors = new StringBuilder();
-
-                boolean allMethodsAreStatic = true;
-                for (Method method : javaClass.getMethods()) {
-                    if (!method.getName().equals("<init>") && !method.isStatic()) {
-                        allMethodsAreStatic = false;
-                        errors.append("\t").append(method.getName()).append(" is not static\n");
-                        break;
-                    }
-                }
-
-                boolean allFieldsAreSimpleConstants = true;
-                for (Field field : javaClass.getFields()) {
-                    if (!fieldIsSimpleConstant(field)) {
-                        allFieldsAreSimpleConstants = false;
-                        errors.append("\t").append(field.getName()).append(" is not simple constant\n");
-                        break;
-                    }
-                }
-
-                if (errors.length() > 0) {
-                    errors.insert(0, "\n");
-                }
-
-                classIsUtility = allMethodsAreStatic && allFieldsAreSimpleConstants;
-                if (!classIsUtility) {
-                    logger.info("Is final not utility: " + javaClass.getClassName() + " " + errors.toString());
-                }
-            }
-
-        }
-        return classIsUtility;
-    }
-
-    private boolean fieldIsSimpleConstant(Field field) {
-        return field.isStatic()
-                && field.isFinal()
-                && (field.getType() instanceof BasicType
-                || field.getType().equals(Type.STRING)
-                || (field.getType() instanceof ObjectType
-                && ((ObjectType) field.getType()).getClassName().equals("org.slf4j.Logger"))
-        );
+        // every depth is written once
+        rollupDepths = new ArrayList<>(new TreeSet<>(rollupDepths));
     }
 
 }
@@ -0,0 +1,273 @@
+package com.github.dryabkov.mvndeps;
+
+import com.github.dryabkov.mvndeps.exceptions.ResultWritingException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes collected data as small JSON files, which the report page loads on demand:
+ * <ul>
+ * <li>modules.json - modules with counts</li>
+ * <li>module-N.json - packages and dependencies of one module</li>
+ * <li>package-N.json - classes of one package of one module with their relations</li>
+ * <li>package-index.json - all packages for search</li>
+ * <li>class-index-X.json - classes whose simple name starts with X for search</li>
+ * </ul>
+ */
+class SiteReportShards {
+
+    static final String SCRIPT = "deps-report.js";
+
+    private final File dir;
+
+    private final ClassesCollector collector;
+
+    // module -> package -> classes
+    private final Map<String, Map<String, List<Classinfo>>> modules = new TreeMap<>();
+    private final Map<String, List<Link<String, String>>> uses = new HashMap<>();
+    private final Map<String, List<Link<String, String>>> usedBy = new HashMap<>();
+    private final Map<String, String> packageShards = new HashMap<>();
+
+    SiteReportShards(File dir, ClassesCollector collector) {
+        this.dir = dir;
+        this.collector = collector;
+    }
+
+    int getModulesCount() {
+        return modules.size();
+    }
+
+    int getPackagesCount() {
+        return packageShards.size();
+    }
+
+    void write() {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new ResultWritingException("Fail to create dir " + dir.getAbsolutePath());
+        }
+        deleteOldShards();
+        group();
+        try {
+            writeModules();
+            writePackageIndex();
+            writeClassIndex();
+            copyScript();
+        } catch (IOException e) {
+            throw new ResultWritingException(e);
+        }
+    }
+
+    /**
+     * Shard names are positional, shards left from a previous run would be linked from the new ones.
+     */
+    private void deleteOldShards() {
+        File[] oldShards = dir.listFiles((d, name) -> name.endsWith(".json"));
+        if (oldShards != null) {
+            for (File shard : oldShards) {
+                if (!shard.delete()) {
+                    throw new ResultWritingException("Fail to delete file " + shard.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    private void group() {
+        for (Classinfo info : collector.getClassesInfo().values()) {
+            modules.computeIfAbsent(info.moduleName, k -> new TreeMap<>())
+                    .computeIfAbsent(ClassesCollector.getPackage(info.name), k -> new ArrayList<>())
+                    .add(info);
+        }
+        for (Link<String, String> link : collector.getClasses().values()) {
+            uses.computeIfAbsent(link.getFrom(), k -> new ArrayList<>()).add(link);
+            usedBy.computeIfAbsent(link.getTo(), k -> new ArrayList<>()).add(link);
+        }
+        for (Map<String, List<Classinfo>> packages : modules.values()) {
+            for (List<Classinfo> classes : packages.values()) {
+                classes.sort(Comparator.comparing(info -> info.name));
+                packageShards.put(shardKey(classes.get(0)), "package-" + packageShards.size() + ".json");
+            }
+        }
+    }
+
+    private void writeModules() throws IOException {
+        Map<String, Map<String, Integer>> moduleDeps = collector.getModuleUsages();
+
+        try (Writer out = shardWriter("modules.json")) {
+            out.write("[");
+            int moduleIdx = 0;
+            for (Map.Entry<String, Map<String, List<Classinfo>>> module : modules.entrySet()) {
+                String shard = "module-" + moduleIdx + ".json";
+                int classesCount = module.getValue().values().stream().mapToInt(List::size).sum();
+                out.write((moduleIdx > 0 ? ",\n" : "") + "{\"name\":" + quote(module.getKey())
+                        + ",\"classes\":" + classesCount
+                        + ",\"packages\":" + module.getValue().size()
+                        + ",\"shard\":" + quote(shard) + "}");
+                writeModule(shard, module.getKey(), module.getValue(),
+                        moduleDeps.getOrDefault(module.getKey(), new TreeMap<>()));
+                moduleIdx++;
+            }
+            out.write("]\n");
+        }
+    }
+
+    private void writeModule(String shard, String moduleName, Map<String, List<Classinfo>> packages,
+                             Map<String, Integer> dependsOn) throws IOException {
+        try (Writer out = shardWriter(shard)) {
+            out.write("{\"name\":" + quote(moduleName) + ",\"dependsOn\":[");
+            String separator = "";
+            for (Map.Entry<String, Integer> dep : dependsOn.entrySet()) {
+                out.write(separator + "[" + quote(dep.getKey()) + "," + dep.getValue() + "]");
+                separator = ",";
+            }
+            out.write("],\n\"packages\":[");
+            separator = "";
+            for (Map.Entry<String, List<Classinfo>> pkg : packages.entrySet()) {
+                String packageShard = packageShards.get(shardKey(pkg.getValue().get(0)));
+                out.write(separator + "[" + quote(pkg.getKey()) + "," + pkg.getValue().size() + ","
+                        + quote(packageShard) + "]");
+                separator = ",\n";
+                writePackage(packageShard, moduleName, pkg.getKey(), pkg.getValue());
+            }
+            out.write("]}\n");
+        }
+    }
+
+    private void writePackage(String shard, String moduleName, String packageName, List<Classinfo> classes)
+            throws IOException {
+        try (Writer out = shardWriter(shard)) {
+            out.write("{\"name\":" + quote(packageName) + ",\"module\":" + quote(moduleName) + ",\"classes\":[");
+            String separator = "";
+            for (Classinfo info : classes) {
+                out.write(separator + "{\"name\":" + quote(info.name) + ",\"kind\":" + quote(kind(info))
+                        + ",\"uses\":" + links(uses.get(info.name), true)
+                        + ",\"usedBy\":" + links(usedBy.get(info.name), false) + "}");
+                separator = ",\n";
+            }
+            out.write("]}\n");
+        }
+    }
+
+    private void writePackageIndex() throws IOException {
+        try (Writer out = shardWriter("package-index.json")) {
+            out.write("[");
+            String separator = "";
+            for (Map.Entry<String, Map<String, List<Classinfo>>> module : modules.entrySet()) {
+                for (Map.Entry<String, List<Classinfo>> pkg : module.getValue().entrySet()) {
+                    out.write(separator + "[" + quote(pkg.getKey()) + "," + quote(module.getKey()) + ","
+                            + pkg.getValue().size() + "," + quote(packageShards.get(shardKey(pkg.getValue().get(0)))) + "]");
+                    separator = ",\n";
+                }
+            }
+            out.write("]\n");
+        }
+    }
+
+    private void writeClassIndex() throws IOException {
+        Map<Character, List<Classinfo>> byFirstChar = new TreeMap<>();
+        for (Map<String, List<Classinfo>> packages : modules.values()) {
+            for (List<Classinfo> classes : packages.values()) {
+                for (Classinfo info : classes) {
+                    byFirstChar.computeIfAbsent(indexChar(simpleName(info.name)), k -> new ArrayList<>()).add(info);
+                }
+            }
+        }
+        for (Map.Entry<Character, List<Classinfo>> entry : byFirstChar.entrySet()) {
+            try (Writer out = shardWriter("class-index-" + entry.getKey() + ".json")) {
+                out.write("[");
+                String separator = "";
+                for (Classinfo info : entry.getValue()) {
+                    out.write(separator + "[" + quote(simpleName(info.name)) + "," + quote(info.name) + ","
+                            + quote(packageShards.get(shardKey(info))) + "]");
+                    separator = ",\n";
+                }
+                out.write("]\n");
+            }
+        }
+    }
+
+    private void copyScript() throws IOException {
+        try (InputStream in = SiteReportShards.class.getResourceAsStream(SCRIPT)) {
+            if (in == null) {
+                throw new ResultWritingException("Missing resource " + SCRIPT);
+            }
+            Files.copy(in, new File(dir, SCRIPT).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private String links(List<Link<String, String>> links, boolean outgoing) {
+        if (links == null) {
+            return "[]";
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (Link<String, String> link : links) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('[').append(quote(outgoing ? link.getTo() : link.getFrom()))
+                    .append(',').append(link.getCount())
+                    .append(',').append(quote(link.relationType() == null ? "" : link.relationType().name()))
+                    .append(']');
+        }
+        return json.append(']').toString();
+    }
+
+    private Writer shardWriter(String name) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(new File(dir, name).toPath()), StandardCharsets.UTF_8));
+    }
+
+    private static String shardKey(Classinfo info) {
+        return info.moduleName + ":" + ClassesCollector.getPackage(info.name);
+    }
+
+    private static String kind(Classinfo info) {
+        if (info.isEnum) {
+            return "E";
+        } else if (info.isInterface) {
+            return "I";
+        } else if (info.isUtility) {
+            return "U";
+        }
+        return "C";
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Same rule as in the page script: latin letters, everything else goes to '_'.
+     */
+    private static char indexChar(String simpleName) {
+        char c = Character.toLowerCase(simpleName.charAt(0));
+        return c >= 'a' && c <= 'z' ? c : '_';
+    }
+
+    private static String quote(String value) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
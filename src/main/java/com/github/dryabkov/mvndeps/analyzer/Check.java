@@ -14,15 +14,20 @@ import org.jgrapht.graph.DefaultDirectedGraph;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class Check {
 
+    private static final long PROGRESS_INTERVAL_MILLIS = 10_000;
+
     @NonNull
     private final Log logger;
 
@@ -32,12 +37,114 @@ public class Check {
     @NonNull
     private final Collection<Link<String, String>> classesRelations;
 
+    private final long timeBudgetMillis;
+
+    private final int maxPathSearches;
+
     public Check(@NonNull Map<String, Classinfo> classInfos,
                  @NonNull Collection<Link<String, String>> classesRelations, @NonNull Log logger) {
 
+        this(classInfos, classesRelations, logger, 0, 0);
+    }
+
+    /**
+     * @param timeBudgetMillis time for the analysis, 0 for unlimited
+     * @param maxPathSearches  how many edges may be checked for alternative paths, 0 for unlimited
+     */
+    public Check(@NonNull Map<String, Classinfo> classInfos,
+                 @NonNull Collection<Link<String, String>> classesRelations, @NonNull Log logger,
+                 long timeBudgetMillis, int maxPathSearches) {
+
         this.classInfos = classInfos;
         this.classesRelations = classesRelations;
         this.logger = logger;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.maxPathSearches = maxPathSearches;
+    }
+
+    /**
+     * Edge between class blocks of different modules.
+     */
+    private static class BlockEdge {
+
+        private final Classinfo from;
+        private final Classinfo to;
+        private final String vertexFrom;
+        private final String vertexTo;
+        private final int count;
+
+        private BlockEdge(Classinfo from, Classinfo to, String vertexFrom, String vertexTo, int count) {
+            this.from = from;
+            this.to = to;
+            this.vertexFrom = vertexFrom;
+            this.vertexTo = vertexTo;
+            this.count = count;
+        }
+
+        /**
+         * Only edges to concrete classes are checked for alternative paths, the others cost nothing.
+         */
+        private boolean needsPathSearch() {
+            return !to.isInterface && !to.isEnum && !to.isUtility;
+        }
+    }
+
+    /**
+     * Counters of a running analysis, logged at most once per {@link #PROGRESS_INTERVAL_MILLIS}
+     * both between edges and from inside a long path search.
+     */
+    private class Progress {
+
+        private final int edges;
+        private final long totalSearches;
+        private final long deadline;
+
+        private int processed;
+        private int searches;
+        private int warnings;
+        private long searchNanos;
+        private long lastProgress = System.currentTimeMillis();
+
+        // edge being searched and when its search started, null between searches
+        private BlockEdge searched;
+        private long searchStarted;
+
+        private Progress(int edges, long totalSearches, long deadline) {
+            this.edges = edges;
+            this.totalSearches = totalSearches;
+            this.deadline = deadline;
+        }
+
+        private void startSearch(BlockEdge edge) {
+            searched = edge;
+            searchStarted = System.nanoTime();
+        }
+
+        private void endSearch() {
+            searched = null;
+            searches++;
+            searchNanos += System.nanoTime() - searchStarted;
+        }
+
+        private void log() {
+            long now = System.currentTimeMillis();
+            if (now - lastProgress < PROGRESS_INTERVAL_MILLIS) {
+                return;
+            }
+            lastProgress = now;
+            double averageMillis = searches == 0 ? 0 : searchNanos / 1e6 / searches;
+            long eta = Math.round(averageMillis * (totalSearches - searches));
+            eta = Math.min(eta, deadline - now) / 1000;
+            if (searched == null) {
+                logger.info(String.format("Check: %d/%d edges processed, %d warnings, ETA %d s",
+                        processed, edges, warnings, eta));
+            } else {
+                logger.info(String.format("Check: %d/%d edges processed, %d warnings, ETA %d s, "
+                                + "searching paths %s -> %s for %d s",
+                        processed, edges, warnings, eta, searched.vertexFrom, searched.vertexTo,
+                        (System.nanoTime() - searchStarted) / 1_000_000_000L));
+            }
+        }
     }
 
     @NonNull
@@ -63,53 +170,109 @@ public class Check {
         writeDotHeader(bufferedWriter);
         writeDotClusters(clusters, bufferedWriter);
 
-        KShortestSimplePaths<String, CountedEdge> kShortestSimplePaths = new KShortestSimplePaths<>(graph);
-        Set<String> processedEdges = new HashSet<>();
-
-        for (Link<String, String> line : classesRelations) {
-
-            Classinfo classInfoFrom = getClassInfo(line.getFrom());
-            Classinfo classInfoTo = getClassInfo(line.getTo());
-
-            String vertexFrom = format(classInfoFrom).getName();
-            String vertexTo = format(classInfoTo).getName();
-            String key = vertexFrom + "~" + vertexTo;
+        List<BlockEdge> edges = collectEdges(graph);
+        long totalSearches = edges.stream().filter(BlockEdge::needsPathSearch).count();
+        if (maxPathSearches > 0) {
+            totalSearches = Math.min(totalSearches, maxPathSearches);
+        }
 
-            if (!processedEdges.contains(key) && !classInfoFrom.moduleName.equals(classInfoTo.moduleName)) {
-                boolean edgeWarn = false;
-                if (!classInfoTo.isInterface && !classInfoTo.isEnum && !classInfoTo.isUtility) {
+        long started = System.currentTimeMillis();
+        long deadline = timeBudgetMillis > 0 ? started + timeBudgetMillis : Long.MAX_VALUE;
+        Progress progress = new Progress(edges.size(), totalSearches, deadline);
+        // long searches on pathological graphs are reported while they run and cut as soon as the budget is over
+        KShortestSimplePaths<String, CountedEdge> kShortestSimplePaths = new KShortestSimplePaths<>(graph,
+                (partialPath, edge) -> {
+                    progress.log();
+                    return System.currentTimeMillis() < deadline;
+                });
+
+        int notAnalyzed = 0;
+
+        for (BlockEdge edge : edges) {
+
+            boolean edgeWarn = false;
+            boolean analyzed = true;
+            if (edge.needsPathSearch()) {
+                if (System.currentTimeMillis() >= deadline
+                        || (maxPathSearches > 0 && progress.searches >= maxPathSearches)) {
+                    analyzed = false;
+                } else {
+                    progress.startSearch(edge);
                     List<GraphPath<String, CountedEdge>> paths = kShortestSimplePaths.getPaths(
-                            vertexFrom, vertexTo, 2);
+                            edge.vertexFrom, edge.vertexTo, 2);
+                    progress.endSearch();
                     if (paths.size() > 1) {
                         edgeWarn = true;
-                        paths.forEach(path -> {
-                            List<String> vertexList = path.getVertexList();
-                            logger.info(vertexList.remove(0));
-                            vertexList.forEach(vertex -> logger.info(" -> " + vertex));
-                            logger.info("");
-                            classesRelations.forEach(cr -> {
-                                if (getPackage(cr.getFrom()).equals(getPackage(classInfoFrom.name)) &&
-                                        getPackage(cr.getTo()).equals(getPackage(classInfoTo.name))) {
-                                    Classinfo candidat = getClassInfo(cr.getTo());
-                                    if (!candidat.isUtility && !candidat.isEnum && !candidat.isInterface) {
-                                        logger.info("    " + cr.getFrom() + " -> " + cr.getTo());
-                                    }
-                                }
-                            });
-                        });
+                        logPaths(paths, edge.from, edge.to);
+                    } else if (System.currentTimeMillis() >= deadline) {
+                        analyzed = false;
                     }
                 }
+            }
 
-                int count = graph.getEdge(vertexFrom, vertexTo).getCount();
-
-                bufferedWriter.write(dotFormatEdge(count, classInfoFrom, classInfoTo, edgeWarn));
-                processedEdges.add(key);
+            if (edgeWarn) {
+                progress.warnings++;
             }
+            if (!analyzed) {
+                notAnalyzed++;
+            }
+            bufferedWriter.write(dotFormatEdge(edge.count, edge.from, edge.to, edgeWarn, analyzed));
+            progress.processed++;
+            progress.log();
+        }
+
+        if (notAnalyzed > 0) {
+            logger.warn(String.format("Check budget is exhausted, %d of %d edges are not analyzed",
+                    notAnalyzed, edges.size()));
         }
+        logger.info(String.format("Check: %d edges processed, %d warnings in %d ms",
+                progress.processed, progress.warnings, System.currentTimeMillis() - started));
 
         writeDotTail(bufferedWriter);
     }
 
+    /**
+     * @return distinct edges between modules, cheap ones first and then by usage count
+     */
+    private List<BlockEdge> collectEdges(Graph<String, CountedEdge> graph) {
+        Map<String, BlockEdge> edges = new LinkedHashMap<>();
+        for (Link<String, String> line : classesRelations) {
+
+            Classinfo classInfoFrom = getClassInfo(line.getFrom());
+            Classinfo classInfoTo = getClassInfo(line.getTo());
+
+            if (!classInfoFrom.moduleName.equals(classInfoTo.moduleName)) {
+                String vertexFrom = format(classInfoFrom).getName();
+                String vertexTo = format(classInfoTo).getName();
+                edges.computeIfAbsent(vertexFrom + "~" + vertexTo, key -> new BlockEdge(classInfoFrom, classInfoTo,
+                        vertexFrom, vertexTo, graph.getEdge(vertexFrom, vertexTo).getCount()));
+            }
+        }
+
+        List<BlockEdge> result = new ArrayList<>(edges.values());
+        result.sort(Comparator.comparing(BlockEdge::needsPathSearch)
+                .thenComparing(edge -> edge.count, Comparator.reverseOrder()));
+        return result;
+    }
+
+    private void logPaths(List<GraphPath<String, CountedEdge>> paths, Classinfo classInfoFrom, Classinfo classInfoTo) {
+        paths.forEach(path -> {
+            List<String> vertexList = path.getVertexList();
+            logger.info(vertexList.remove(0));
+            vertexList.forEach(vertex -> logger.info(" -> " + vertex));
+            logger.info("");
+            classesRelations.forEach(cr -> {
+                if (getPackage(cr.getFrom()).equals(getPackage(classInfoFrom.name)) &&
+                        getPackage(cr.getTo()).equals(getPackage(classInfoTo.name))) {
+                    Classinfo candidat = getClassInfo(cr.getTo());
+                    if (!candidat.isUtility && !candidat.isEnum && !candidat.isInterface) {
+                        logger.info("    " + cr.getFrom() + " -> " + cr.getTo());
+                    }
+                }
+            });
+        });
+    }
+
     private void fillGraph(Graph<String, CountedEdge> graph, Map<String, Set<ClassBlock>> clusters) {
         for (Link<String, String> line : classesRelations) {
             Classinfo classInfoFrom = getClassInfo(line.getFrom());
@@ -185,10 +348,15 @@ public class Check {
     }
 
     @NonNull
-    private String dotFormatEdge(int count, @NonNull Classinfo from, @NonNull Classinfo to, boolean edgeWarn) {
-        return "\"" + format(from).getName() + "\" -> \"" + format(to).getName() + "\"" +
-                (edgeWarn ? " [color=red;" + "headlabel=\"" + count + "\";]" : "")
-                + ";\n";
+    private String dotFormatEdge(int count, @NonNull Classinfo from, @NonNull Classinfo to, boolean edgeWarn,
+                                 boolean analyzed) {
+        String attributes = "";
+        if (edgeWarn) {
+            attributes = " [color=red;" + "headlabel=\"" + count + "\";]";
+        } else if (!analyzed) {
+            attributes = " [style=dashed;tooltip=\"not analyzed\";]";
+        }
+        return "\"" + format(from).getName() + "\" -> \"" + format(to).getName() + "\"" + attributes + ";\n";
     }
 
     @NonNull
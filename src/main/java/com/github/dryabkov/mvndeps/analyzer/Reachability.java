@@ -0,0 +1,142 @@
+package com.github.dryabkov.mvndeps.analyzer;
+
+import com.github.dryabkov.mvndeps.Classinfo;
+import com.github.dryabkov.mvndeps.Link;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Finds classes which can not be reached by class relations from root classes.
+ * Relations are kept as compressed adjacency arrays over class ids, reached classes as a bitset.
+ */
+public class Reachability {
+
+    @NonNull
+    private final List<Classinfo> classes;
+
+    private final int[] offsets;
+
+    private final int[] targets;
+
+    public Reachability(@NonNull Map<String, Classinfo> classInfos,
+                        @NonNull Collection<Link<String, String>> classesRelations) {
+
+        this.classes = new ArrayList<>(classInfos.values());
+        Map<String, Integer> ids = new HashMap<>();
+        for (int id = 0; id < classes.size(); id++) {
+            ids.put(classes.get(id).name, id);
+        }
+
+        int[] from = new int[classesRelations.size()];
+        int[] to = new int[classesRelations.size()];
+        int count = 0;
+        offsets = new int[classes.size() + 1];
+        for (Link<String, String> link : classesRelations) {
+            Integer fromId = ids.get(link.getFrom());
+            Integer toId = ids.get(link.getTo());
+            if (fromId != null && toId != null) {
+                from[count] = fromId;
+                to[count] = toId;
+                offsets[fromId + 1]++;
+                count++;
+            }
+        }
+        for (int id = 0; id < classes.size(); id++) {
+            offsets[id + 1] += offsets[id];
+        }
+        targets = new int[count];
+        int[] next = offsets.clone();
+        for (int i = 0; i < count; i++) {
+            targets[next[from[i]]++] = to[i];
+        }
+    }
+
+    /**
+     * @param mainClasses     classes with main method are roots
+     * @param annotations     classes with an annotation matching any of patterns are roots
+     * @param names           classes with full name matching any of patterns are roots
+     * @param publicPackages  public classes of these packages and their subpackages are roots
+     */
+    @NonNull
+    public static Predicate<Classinfo> roots(boolean mainClasses, @NonNull List<Pattern> annotations,
+                                             @NonNull List<Pattern> names, @NonNull List<String> publicPackages) {
+        return info -> (mainClasses && info.hasMain)
+                || info.annotations.stream().anyMatch(annotation -> matchesAny(annotations, annotation))
+                || matchesAny(names, info.name)
+                || (info.isPublic && publicPackages.stream()
+                .anyMatch(pkg -> info.name.startsWith(pkg.endsWith(".") ? pkg : pkg + ".")));
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String value) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(value).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NonNull
+    public BitSet reachableFrom(@NonNull Predicate<Classinfo> isRoot) {
+        BitSet reached = new BitSet(classes.size());
+        int[] queue = new int[classes.size()];
+        int tail = 0;
+        for (int id = 0; id < classes.size(); id++) {
+            if (isRoot.test(classes.get(id))) {
+                reached.set(id);
+                queue[tail++] = id;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int id = queue[head];
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                if (!reached.get(targets[i])) {
+                    reached.set(targets[i]);
+                    queue[tail++] = targets[i];
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * @return module name to names of its unreachable classes
+     */
+    @NonNull
+    public Map<String, List<String>> unreachableByModule(@NonNull BitSet reached) {
+        Map<String, List<String>> result = new TreeMap<>();
+        for (int id = reached.nextClearBit(0); id < classes.size(); id = reached.nextClearBit(id + 1)) {
+            Classinfo info = classes.get(id);
+            result.computeIfAbsent(info.moduleName, k -> new ArrayList<>()).add(info.name);
+        }
+        result.values().forEach(names -> names.sort(String::compareTo));
+        return result;
+    }
+
+    /**
+     * @return modules none of which classes is reachable
+     */
+    @NonNull
+    public List<String> deadModules(@NonNull BitSet reached) {
+        Map<String, Boolean> moduleReached = new TreeMap<>();
+        for (int id = 0; id < classes.size(); id++) {
+            moduleReached.merge(classes.get(id).moduleName, reached.get(id), Boolean::logicalOr);
+        }
+        List<String> result = new ArrayList<>();
+        moduleReached.forEach((module, isReached) -> {
+            if (!isReached) {
+                result.add(module);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Loads JSON shards written by the report on demand and renders them page by page.
+ */
+(function () {
+    var root = document.getElementById('deps-report');
+    var base = root.getAttribute('data-base');
+    var pageSize = parseInt(root.getAttribute('data-page-size'), 10);
+    var cache = {};
+
+    function load(name, callback) {
+        if (cache[name]) {
+            callback(cache[name]);
+            return;
+        }
+        var xhr = new XMLHttpRequest();
+        xhr.open('GET', base + name);
+        xhr.onload = function () {
+            // status is 0 when the site is opened from file system
+            if (xhr.status === 200 || xhr.status === 0) {
+                cache[name] = JSON.parse(xhr.responseText);
+                callback(cache[name]);
+            }
+        };
+        xhr.send();
+    }
+
+    function el(tag, text) {
+        var e = document.createElement(tag);
+        if (text !== undefined) {
+            e.textContent = text;
+        }
+        return e;
+    }
+
+    function link(text, onClick) {
+        var a = el('a', text);
+        a.href = '#';
+        a.onclick = function (event) {
+            event.preventDefault();
+            onClick();
+        };
+        return a;
+    }
+
+    function pagedTable(container, title, headers, rows, renderRow) {
+        container.appendChild(el('h3', title + ' (' + rows.length + ')'));
+        var table = el('table');
+        table.className = 'bodyTable';
+        var head = el('tr');
+        headers.forEach(function (header) {
+            head.appendChild(el('th', header));
+        });
+        table.appendChild(head);
+        container.appendChild(table);
+
+        var shown = 0;
+        var more = link('', showMore);
+
+        function showMore() {
+            rows.slice(shown, shown + pageSize).forEach(function (row) {
+                var tr = el('tr');
+                renderRow(row).forEach(function (cell) {
+                    var td = el('td');
+                    td.appendChild(typeof cell === 'object' ? cell : document.createTextNode(cell));
+                    tr.appendChild(td);
+                });
+                table.appendChild(tr);
+            });
+            shown = Math.min(shown + pageSize, rows.length);
+            more.textContent = 'Show more (' + (rows.length - shown) + ' left)';
+            more.style.display = shown < rows.length ? '' : 'none';
+        }
+
+        container.appendChild(more);
+        showMore();
+    }
+
+    function relations(links) {
+        return links.map(function (l) {
+            return l[0] + ' (' + l[1] + (l[2] ? ', ' + l[2] : '') + ')';
+        }).join('\n');
+    }
+
+    function showModules() {
+        load('modules.json', function (modules) {
+            var container = document.getElementById('deps-modules');
+            container.innerHTML = '';
+            pagedTable(container, 'Modules', ['Module', 'Packages', 'Classes'], modules, function (m) {
+                return [link(m.name, function () {
+                    showModule(m.shard);
+                }), m.packages, m.classes];
+            });
+        });
+    }
+
+    function showModule(shard) {
+        load(shard, function (module) {
+            var container = document.getElementById('deps-details');
+            container.innerHTML = '';
+            container.appendChild(el('h2', module.name));
+            pagedTable(container, 'Depends on', ['Module', 'Usages'], module.dependsOn, function (d) {
+                return [d[0], d[1]];
+            });
+            pagedTable(container, 'Packages', ['Package', 'Classes'], module.packages, function (p) {
+                return [link(p[0], function () {
+                    showPackage(p[2]);
+                }), p[1]];
+            });
+            container.scrollIntoView();
+        });
+    }
+
+    function showPackage(shard) {
+        load(shard, function (pkg) {
+            var container = document.getElementById('deps-details');
+            container.innerHTML = '';
+            container.appendChild(el('h2', pkg.module + ': ' + pkg.name));
+            pagedTable(container, 'Classes', ['Class', 'Kind', 'Uses', 'Used by'], pkg.classes, function (c) {
+                var usesCell = el('pre', relations(c.uses));
+                var usedByCell = el('pre', relations(c.usedBy));
+                return [c.name, c.kind, usesCell, usedByCell];
+            });
+            container.scrollIntoView();
+        });
+    }
+
+    function indexChar(query) {
+        var c = query.charAt(0);
+        return c >= 'a' && c <= 'z' ? c : '_';
+    }
+
+    var currentQuery = '';
+
+    function search(query) {
+        currentQuery = query;
+        var container = document.getElementById('deps-search-results');
+        container.innerHTML = '';
+        if (query.length < 2) {
+            return;
+        }
+        load('package-index.json', function (packages) {
+            if (query !== currentQuery) {
+                return;
+            }
+            var found = packages.filter(function (p) {
+                return p[0].toLowerCase().indexOf(query) >= 0;
+            });
+            pagedTable(container, 'Packages', ['Package', 'Module', 'Classes'], found, function (p) {
+                return [link(p[0], function () {
+                    showPackage(p[3]);
+                }), p[1], p[2]];
+            });
+        });
+        // classes are found by a prefix of the simple name, optionally qualified: impl.core.Imp
+        var simpleQuery = query.substring(query.lastIndexOf('.') + 1);
+        if (simpleQuery.length === 0) {
+            return;
+        }
+        load('class-index-' + indexChar(simpleQuery) + '.json', function (classes) {
+            if (query !== currentQuery) {
+                return;
+            }
+            var found = classes.filter(function (c) {
+                return c[0].toLowerCase().indexOf(simpleQuery) === 0 && c[1].toLowerCase().indexOf(query) >= 0;
+            });
+            pagedTable(container, 'Classes', ['Class'], found, function (c) {
+                return [link(c[1], function () {
+                    showPackage(c[2]);
+                })];
+            });
+        });
+    }
+
+    var searchTimer;
+    document.getElementById('deps-search').oninput = function (event) {
+        clearTimeout(searchTimer);
+        var query = event.target.value.trim().toLowerCase();
+        searchTimer = setTimeout(function () {
+            search(query);
+        }, 200);
+    };
+
+    showModules();
+}());